@@ -0,0 +1,177 @@
+package com.rich.countyfilter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sanity checks for CountyAggregates, run against a scratch copy of data/:
+ *   java -cp out com.rich.countyfilter.CheckAggregates
+ *
+ * Covers the rollups (regions add up to the nation, population weighting, legacy FIPS codes)
+ * and every refresh path: single-file edit, failed refresh, population change, new FIPS,
+ * dropped FIPS, deleted file.
+ */
+public class CheckAggregates {
+
+    private static long clock = System.currentTimeMillis();
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("county-aggregates");
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(Path.of("data"), "*.tsv")) {
+            for (Path p : ds) Files.copy(p, dir.resolve(p.getFileName()));
+        }
+
+        CountyAggregates a = CountyAggregates.load(dir);
+        checkRollups(a);
+        checkLegacyFips(a);
+        checkRefreshAfterEdit(a, dir);
+        checkFailedRefresh(a, dir);
+        checkPopulationChange(a, dir);
+        checkNewFips(a, dir);
+        checkDroppedFips(a, dir);
+        checkDeletedFile(a, dir);
+
+        System.out.println("All checks passed.");
+    }
+
+    private static void checkRollups(CountyAggregates a) {
+        CountyAggregates.Group nation = single(a, "nation", "population", Map.of());
+        int counties = 0;
+        long population = 0;
+        for (CountyAggregates.Group g : a.aggregate("region", List.of("population"), Map.of()).groups) {
+            counties += g.counties;
+            population += Math.round(g.stats.get("population").population);
+        }
+        expect(counties == nation.counties, "regions cover " + counties + " of " + nation.counties + " counties");
+        expect(population == Math.round(nation.stats.get("population").population), "region population adds up to nation");
+
+        CountyAggregates.Stats pop = nation.stats.get("population");
+        expect(Math.abs(pop.mean * pop.count - pop.population) < 1, "population mean is the per-county average");
+        System.out.println("OK rollups");
+    }
+
+    private static void checkLegacyFips(CountyAggregates a) {
+        // Every county in the shipped data has a price, so a state with more counties than
+        // prices has a county split across a retired and a current FIPS code.
+        for (CountyAggregates.Group g : a.aggregate("state", List.of("price"), Map.of()).groups) {
+            int prices = g.stats.get("price").count;
+            expect(g.counties == prices, "state " + g.key + " has " + g.counties + " counties but " + prices + " prices");
+        }
+        Map<String, double[]> filters = Map.of("price", new double[]{0, 1e9}, "life", new double[]{0, 200});
+        for (String fips : CountyData.LEGACY_FIPS_ALIAS.values()) {
+            String state = fips.substring(0, 2);
+            CountyAggregates.Group g = null;
+            for (CountyAggregates.Group x : a.aggregate("state", List.of("price"), filters).groups) {
+                if (x.key.equals(state)) g = x;
+            }
+            CountyAggregates.Group unfiltered = null;
+            for (CountyAggregates.Group x : a.aggregate("state", List.of("life"), Map.of()).groups) {
+                if (x.key.equals(state)) unfiltered = x;
+            }
+            expect(g != null && g.counties == unfiltered.stats.get("life").count,
+                    "counties in " + state + " with a life value all match a price+life filter");
+        }
+        System.out.println("OK legacy FIPS");
+    }
+
+    private static void checkRefreshAfterEdit(CountyAggregates a, Path dir) throws IOException {
+        replaceValue(dir.resolve("minimum_wage.tsv"), "01001", "123");
+        expect(a.refreshIfChanged(), "wage edit is picked up");
+        expect(wageMatches(a) == 1, "edited wage is filterable");
+        expect(!a.refreshIfChanged(), "no reload without changes");
+        System.out.println("OK refresh after edit");
+    }
+
+    private static void checkFailedRefresh(CountyAggregates a, Path dir) throws IOException {
+        replaceValue(dir.resolve("minimum_wage.tsv"), "01003", "150");
+        Path race = dir.resolve("race_data.tsv");
+        Path saved = dir.resolve("race_data.saved");
+        Files.move(race, saved);
+        Files.createDirectory(race);
+
+        boolean failed = false;
+        try {
+            a.refreshIfChanged();
+        } catch (IOException e) {
+            failed = true;
+        }
+        expect(failed, "unreadable race_data.tsv fails the refresh");
+        expect(wageMatches(a) == 1, "failed refresh keeps the last good cube");
+
+        Files.delete(race);
+        Files.move(saved, race);
+        touch(race);
+        expect(a.refreshIfChanged(), "refresh succeeds once race_data.tsv is back");
+        expect(wageMatches(a) == 2, "wage edit from the failed refresh is not lost");
+        System.out.println("OK failed refresh");
+    }
+
+    private static void checkPopulationChange(CountyAggregates a, Path dir) throws IOException {
+        double before = single(a, "state", "price", Map.of()).stats.get("price").mean;
+        replaceValue(dir.resolve("population.tsv"), "01001", "50000000");
+        expect(a.refreshIfChanged(), "population edit is picked up");
+        double after = single(a, "state", "price", Map.of()).stats.get("price").mean;
+        expect(before != after, "population change re-weights other metrics");
+        System.out.println("OK population change");
+    }
+
+    private static void checkNewFips(CountyAggregates a, Path dir) throws IOException {
+        int before = a.countyCount();
+        Path prices = dir.resolve("prices.tsv");
+        Files.writeString(prices, Files.readString(prices) + "99001\t100000\n");
+        touch(prices);
+        expect(a.refreshIfChanged(), "new FIPS is picked up");
+        expect(a.countyCount() == before + 1, "new FIPS triggers a full rebuild");
+        checkRollups(a);
+        System.out.println("OK new FIPS");
+    }
+
+    private static void checkDroppedFips(CountyAggregates a, Path dir) throws IOException {
+        int before = a.countyCount();
+        Path prices = dir.resolve("prices.tsv");
+        Files.writeString(prices, Files.readString(prices).replace("99001\t100000\n", ""));
+        touch(prices);
+        expect(a.refreshIfChanged(), "dropped FIPS is picked up");
+        expect(a.countyCount() == before - 1, "dropped FIPS triggers a full rebuild");
+        expect(a.countyCount() == CountyAggregates.load(dir).countyCount(), "refreshed cube matches a fresh load");
+        System.out.println("OK dropped FIPS");
+    }
+
+    private static void checkDeletedFile(CountyAggregates a, Path dir) throws IOException {
+        Files.delete(dir.resolve("homicide_rate.tsv"));
+        expect(a.refreshIfChanged(), "deleted file is picked up");
+        CountyAggregates.Group nation = single(a, "nation", "homicide", Map.of());
+        expect(nation.stats.get("homicide").count == 0, "deleted file empties its metric");
+        System.out.println("OK deleted file");
+    }
+
+    private static int wageMatches(CountyAggregates a) {
+        return a.aggregate("nation", List.of("wage"), Map.of("wage", new double[]{100, 200})).matched;
+    }
+
+    private static CountyAggregates.Group single(CountyAggregates a, String by, String metric,
+                                                 Map<String, double[]> filters) {
+        return a.aggregate(by, List.of(metric), filters).groups.get(0);
+    }
+
+    private static void replaceValue(Path p, String fips, String value) throws IOException {
+        String text = Files.readString(p).replaceAll("(?m)^" + fips + "\t[^\t\r\n]*", fips + "\t" + value);
+        Files.writeString(p, text);
+        touch(p);
+    }
+
+    // Bump mtimes explicitly so edits within the same millisecond still count as changes.
+    private static void touch(Path p) throws IOException {
+        clock += 1000;
+        Files.setLastModifiedTime(p, FileTime.fromMillis(clock));
+    }
+
+    private static void expect(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException("Check failed: " + what);
+    }
+}
@@ -0,0 +1,517 @@
+package com.rich.countyfilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * State / census region / national rollups of the per-county TSV metrics.
+ *
+ * All county values are loaded into dense arrays indexed by county. For every metric the
+ * counties with a value are kept sorted by value, so a range filter becomes a binary search
+ * plus a BitSet, and percentiles of any county subset are read off in order without sorting.
+ * Unfiltered rollups are precomputed into a cube keyed by group; filtered rollups AND the
+ * filter bitsets with the group bitsets. Mean and percentiles are population-weighted, except
+ * for population itself, which uses equal county weights. Counties outside the 50 states and DC
+ * are rolled up into a "Territories" region so the regions always add up to the nation.
+ *
+ * When a source file changes on disk only the metrics read from it are reloaded (all metrics
+ * are re-aggregated if population.tsv changes, since it supplies the weights). A refresh reads
+ * every changed file before applying anything, so a failed read leaves the last good cube and
+ * is retried on the next call.
+ */
+public class CountyAggregates {
+
+    public static final String BY_NATION = "nation";
+    public static final String BY_REGION = "region";
+    public static final String BY_STATE = "state";
+
+    private static final double[] PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90};
+    private static final String[] PERCENTILE_NAMES = {"p10", "p25", "median", "p75", "p90"};
+
+    private final Path dataDir;
+    private final List<Source> sources = new ArrayList<>();
+    private final String[] metrics;
+    private final int populationMetric;
+
+    private String[] fips;
+    private double[][] values;
+    private int[][] order;
+    private double[][] sortedValues;
+    private BitSet all;
+    private final Map<String, BitSet> states = new TreeMap<>();
+    private final Map<String, BitSet> regions = new LinkedHashMap<>();
+    private final Map<String, Stats[]> cube = new HashMap<>();
+
+    private CountyAggregates(Path dataDir) {
+        this.dataDir = dataDir;
+        sources.add(new Source("prices.tsv", new String[]{"price"}, new int[]{1}));
+        sources.add(new Source("life_expectancy.tsv", new String[]{"life"}, new int[]{1}));
+        sources.add(new Source("minimum_wage.tsv", new String[]{"wage"}, new int[]{1}));
+        sources.add(new Source("homicide_rate.tsv", new String[]{"homicide"}, new int[]{1}));
+        sources.add(new Source("population.tsv", new String[]{"population"}, new int[]{1}));
+        sources.add(new Source("race_data.tsv",
+                new String[]{"white", "black", "asian", "hispanic"}, new int[]{1, 2, 3, 4}));
+
+        List<String> names = new ArrayList<>();
+        for (Source s : sources) {
+            s.firstMetric = names.size();
+            names.addAll(Arrays.asList(s.metrics));
+        }
+        this.metrics = names.toArray(new String[0]);
+        this.populationMetric = names.indexOf("population");
+    }
+
+    public static CountyAggregates load(Path dataDir) throws IOException {
+        CountyAggregates a = new CountyAggregates(dataDir);
+        a.rebuildAll();
+        return a;
+    }
+
+    public synchronized int countyCount() {
+        return fips.length;
+    }
+
+    /**
+     * Reloads any source file whose modification time changed since it was last read.
+     * Returns true if anything was reloaded.
+     */
+    public synchronized boolean refreshIfChanged() throws IOException {
+        List<Source> changed = new ArrayList<>();
+        Map<Source, Long> seen = new HashMap<>();
+        for (Source s : sources) {
+            long mtime = lastModified(dataDir.resolve(s.file));
+            if (mtime != s.lastModified) {
+                changed.add(s);
+                seen.put(s, mtime);
+            }
+        }
+        if (changed.isEmpty()) return false;
+
+        Map<Source, Map<String, double[]>> rows = new HashMap<>();
+        for (Source s : changed) {
+            rows.put(s, readSource(s));
+        }
+        TreeSet<String> universe = new TreeSet<>();
+        for (Source s : sources) {
+            universe.addAll(rows.containsKey(s) ? rows.get(s).keySet() : s.fips);
+        }
+        if (!Arrays.equals(universe.toArray(new String[0]), fips)) {
+            // A county was added or dropped: the index space changes, so start over.
+            rebuildAll();
+            return true;
+        }
+
+        boolean weightsChanged = false;
+        for (Source s : changed) {
+            s.lastModified = seen.get(s);
+            s.fips = rows.get(s).keySet();
+            fillValues(s, rows.get(s));
+            for (int k = 0; k < s.metrics.length; k++) sortMetric(s.firstMetric + k);
+            if (s.firstMetric <= populationMetric && populationMetric < s.firstMetric + s.metrics.length) {
+                weightsChanged = true;
+            }
+        }
+
+        if (weightsChanged) {
+            for (int m = 0; m < metrics.length; m++) aggregateMetric(m);
+        } else {
+            for (Source s : changed) {
+                for (int k = 0; k < s.metrics.length; k++) aggregateMetric(s.firstMetric + k);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rolls up the requested metrics by nation, region or state.
+     *
+     * @param by      one of {@link #BY_NATION}, {@link #BY_REGION}, {@link #BY_STATE}
+     * @param names   metrics to report, or empty for all
+     * @param filters metric name -> {min, max}; a county passes only if it has a value in range
+     */
+    public synchronized Result aggregate(String by, List<String> names, Map<String, double[]> filters) {
+        Map<String, BitSet> groups = groupsFor(by);
+
+        int[] selected;
+        if (names.isEmpty()) {
+            selected = new int[metrics.length];
+            for (int m = 0; m < metrics.length; m++) selected[m] = m;
+        } else {
+            selected = new int[names.size()];
+            for (int i = 0; i < selected.length; i++) selected[i] = metricIndex(names.get(i));
+        }
+
+        BitSet match = null;
+        if (!filters.isEmpty()) {
+            match = (BitSet) all.clone();
+            for (Map.Entry<String, double[]> e : filters.entrySet()) {
+                double[] range = e.getValue();
+                match.and(rangeBits(metricIndex(e.getKey()), range[0], range[1]));
+            }
+        }
+
+        Result result = new Result(by, match != null, match == null ? all.cardinality() : match.cardinality());
+        for (Map.Entry<String, BitSet> g : groups.entrySet()) {
+            BitSet members = g.getValue();
+            Stats[] cached = cube.get(by + ":" + g.getKey());
+            if (match != null) {
+                members = (BitSet) members.clone();
+                members.and(match);
+            }
+
+            Map<String, Stats> stats = new LinkedHashMap<>();
+            for (int m : selected) {
+                stats.put(metrics[m], match == null ? cached[m] : computeStats(m, members));
+            }
+            result.groups.add(new Group(g.getKey(), members.cardinality(), stats));
+        }
+        return result;
+    }
+
+    private void rebuildAll() throws IOException {
+        Map<Source, Map<String, double[]>> rows = new HashMap<>();
+        Map<Source, Long> seen = new HashMap<>();
+        TreeSet<String> universe = new TreeSet<>();
+        for (Source s : sources) {
+            seen.put(s, lastModified(dataDir.resolve(s.file)));
+            Map<String, double[]> r = readSource(s);
+            rows.put(s, r);
+            universe.addAll(r.keySet());
+        }
+
+        fips = universe.toArray(new String[0]);
+        values = new double[metrics.length][];
+        order = new int[metrics.length][];
+        sortedValues = new double[metrics.length][];
+
+        all = new BitSet(fips.length);
+        all.set(0, fips.length);
+        states.clear();
+        regions.clear();
+        for (String region : REGION_NAMES) regions.put(region, new BitSet(fips.length));
+        for (int i = 0; i < fips.length; i++) {
+            String st = fips[i].substring(0, 2);
+            states.computeIfAbsent(st, k -> new BitSet(fips.length)).set(i);
+            regions.get(REGION_BY_STATE_FIPS.getOrDefault(st, TERRITORIES)).set(i);
+        }
+
+        for (Source s : sources) {
+            s.lastModified = seen.get(s);
+            s.fips = rows.get(s).keySet();
+            fillValues(s, rows.get(s));
+            for (int k = 0; k < s.metrics.length; k++) sortMetric(s.firstMetric + k);
+        }
+
+        cube.clear();
+        for (int m = 0; m < metrics.length; m++) aggregateMetric(m);
+    }
+
+    private Map<String, double[]> readSource(Source s) throws IOException {
+        Path p = dataDir.resolve(s.file);
+        Map<String, double[]> rows = new HashMap<>();
+        if (!Files.exists(p)) return rows;
+
+        try (BufferedReader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+            r.readLine(); // header
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] parts = line.split("\\t", -1);
+                String raw = CountyData.normalizeFips(parts[0]);
+                if (raw == null) continue;
+
+                double[] v = new double[s.columns.length];
+                for (int k = 0; k < v.length; k++) {
+                    Double d = s.columns[k] < parts.length ? CountyData.parseNumber(parts[s.columns[k]]) : null;
+                    v[k] = d == null ? Double.NaN : d;
+                }
+                String f = CountyData.currentFips(raw);
+                if (f.equals(raw)) {
+                    rows.put(f, v);
+                } else {
+                    // A row under the current code wins over one under its retired code.
+                    rows.putIfAbsent(f, v);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void fillValues(Source s, Map<String, double[]> rows) {
+        for (int k = 0; k < s.metrics.length; k++) {
+            double[] v = new double[fips.length];
+            Arrays.fill(v, Double.NaN);
+            for (Map.Entry<String, double[]> e : rows.entrySet()) {
+                v[Arrays.binarySearch(fips, e.getKey())] = e.getValue()[k];
+            }
+            values[s.firstMetric + k] = v;
+        }
+    }
+
+    private void sortMetric(int m) {
+        double[] v = values[m];
+        Integer[] idx = new Integer[v.length];
+        int n = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (!Double.isNaN(v[i])) idx[n++] = i;
+        }
+        Arrays.sort(idx, 0, n, (a, b) -> Double.compare(v[a], v[b]));
+
+        int[] o = new int[n];
+        double[] sv = new double[n];
+        for (int i = 0; i < n; i++) {
+            o[i] = idx[i];
+            sv[i] = v[idx[i]];
+        }
+        order[m] = o;
+        sortedValues[m] = sv;
+    }
+
+    private void aggregateMetric(int m) {
+        put(BY_NATION + ":US", m, computeStats(m, all));
+        for (Map.Entry<String, BitSet> e : regions.entrySet()) {
+            put(BY_REGION + ":" + e.getKey(), m, computeStats(m, e.getValue()));
+        }
+        for (Map.Entry<String, BitSet> e : states.entrySet()) {
+            put(BY_STATE + ":" + e.getKey(), m, computeStats(m, e.getValue()));
+        }
+    }
+
+    private void put(String key, int m, Stats s) {
+        cube.computeIfAbsent(key, k -> new Stats[metrics.length])[m] = s;
+    }
+
+    private Stats computeStats(int m, BitSet members) {
+        int[] o = order[m];
+        double[] sv = sortedValues[m];
+        double[] pop = values[populationMetric];
+        // Weighting population by itself is meaningless, so it gets equal county weights.
+        boolean equalWeights = m == populationMetric;
+
+        int n = 0;
+        double[] vals = new double[Math.min(o.length, members.cardinality())];
+        double[] weights = new double[vals.length];
+        double population = 0;
+        for (int i = 0; i < o.length && n < vals.length; i++) {
+            if (!members.get(o[i])) continue;
+            double w = pop[o[i]];
+            if (Double.isNaN(w) || w < 0) w = 0;
+            vals[n] = sv[i];
+            weights[n] = equalWeights ? 1 : w;
+            population += w;
+            n++;
+        }
+        if (n == 0) return new Stats(0, 0, Double.NaN, Double.NaN, Double.NaN, new double[PERCENTILES.length]);
+
+        double totalWeight = equalWeights ? n : population;
+        // Groups with no population data at all fall back to equal county weights.
+        if (totalWeight == 0) {
+            Arrays.fill(weights, 0, n, 1);
+            totalWeight = n;
+        }
+
+        double sum = 0;
+        for (int i = 0; i < n; i++) sum += vals[i] * weights[i];
+
+        double[] pct = new double[PERCENTILES.length];
+        double cumulative = 0;
+        int p = 0;
+        for (int i = 0; i < n && p < pct.length; i++) {
+            cumulative += weights[i];
+            while (p < pct.length && cumulative >= PERCENTILES[p] * totalWeight) {
+                pct[p++] = vals[i];
+            }
+        }
+        while (p < pct.length) pct[p++] = vals[n - 1];
+
+        return new Stats(n, population, sum / totalWeight, vals[0], vals[n - 1], pct);
+    }
+
+    private BitSet rangeBits(int m, double min, double max) {
+        double[] sv = sortedValues[m];
+        int from = lowerBound(sv, min);
+        int to = upperBound(sv, max);
+        BitSet bits = new BitSet(fips.length);
+        for (int i = from; i < to; i++) bits.set(order[m][i]);
+        return bits;
+    }
+
+    private static int lowerBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private Map<String, BitSet> groupsFor(String by) {
+        if (BY_STATE.equals(by)) return states;
+        if (BY_REGION.equals(by)) return regions;
+        if (BY_NATION.equals(by)) return Map.of("US", all);
+        throw new IllegalArgumentException("Unknown grouping: " + by + " (expected nation, region or state)");
+    }
+
+    private int metricIndex(String name) {
+        for (int m = 0; m < metrics.length; m++) {
+            if (metrics[m].equals(name)) return m;
+        }
+        throw new IllegalArgumentException("Unknown metric: " + name);
+    }
+
+    private static long lastModified(Path p) throws IOException {
+        return Files.exists(p) ? Files.getLastModifiedTime(p).toMillis() : -1;
+    }
+
+    private static class Source {
+        final String file;
+        final String[] metrics;
+        final int[] columns;
+        int firstMetric;
+        long lastModified;
+        Set<String> fips = Set.of();
+
+        Source(String file, String[] metrics, int[] columns) {
+            this.file = file;
+            this.metrics = metrics;
+            this.columns = columns;
+        }
+    }
+
+    public static class Stats {
+        final int count;
+        final double population;
+        final double mean;
+        final double min;
+        final double max;
+        final double[] percentiles;
+
+        Stats(int count, double population, double mean, double min, double max, double[] percentiles) {
+            this.count = count;
+            this.population = population;
+            this.mean = mean;
+            this.min = min;
+            this.max = max;
+            this.percentiles = percentiles;
+        }
+
+        void appendJson(StringBuilder sb) {
+            sb.append("{\"count\":").append(count);
+            sb.append(",\"population\":").append(Math.round(population));
+            if (count == 0) {
+                sb.append('}');
+                return;
+            }
+            appendNumber(sb.append(",\"mean\":"), mean);
+            appendNumber(sb.append(",\"min\":"), min);
+            for (int i = 0; i < percentiles.length; i++) {
+                appendNumber(sb.append(",\"").append(PERCENTILE_NAMES[i]).append("\":"), percentiles[i]);
+            }
+            appendNumber(sb.append(",\"max\":"), max);
+            sb.append('}');
+        }
+    }
+
+    public static class Group {
+        final String key;
+        final int counties;
+        final Map<String, Stats> stats;
+
+        Group(String key, int counties, Map<String, Stats> stats) {
+            this.key = key;
+            this.counties = counties;
+            this.stats = stats;
+        }
+    }
+
+    public static class Result {
+        final String by;
+        final boolean filtered;
+        final int matched;
+        final List<Group> groups = new ArrayList<>();
+
+        Result(String by, boolean filtered, int matched) {
+            this.by = by;
+            this.filtered = filtered;
+            this.matched = matched;
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"by\":\"").append(by).append('"');
+            sb.append(",\"filtered\":").append(filtered);
+            sb.append(",\"matched\":").append(matched);
+            sb.append(",\"groups\":[");
+            for (int i = 0; i < groups.size(); i++) {
+                Group g = groups.get(i);
+                if (i > 0) sb.append(',');
+                sb.append("{\"key\":\"").append(g.key).append('"');
+                sb.append(",\"counties\":").append(g.counties);
+                sb.append(",\"metrics\":{");
+                boolean first = true;
+                for (Map.Entry<String, Stats> e : g.stats.entrySet()) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    sb.append('"').append(e.getKey()).append("\":");
+                    e.getValue().appendJson(sb);
+                }
+                sb.append("}}");
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+    }
+
+    private static void appendNumber(StringBuilder sb, double d) {
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+            sb.append((long) d);
+        } else {
+            sb.append(Math.round(d * 1000) / 1000.0);
+        }
+    }
+
+    private static final String TERRITORIES = "Territories";
+    private static final String[] REGION_NAMES = {"Northeast", "Midwest", "South", "West", TERRITORIES};
+
+    private static final Map<String, String> REGION_BY_STATE_FIPS = Map.ofEntries(
+            Map.entry("09", "Northeast"), Map.entry("23", "Northeast"), Map.entry("25", "Northeast"),
+            Map.entry("33", "Northeast"), Map.entry("34", "Northeast"), Map.entry("36", "Northeast"),
+            Map.entry("42", "Northeast"), Map.entry("44", "Northeast"), Map.entry("50", "Northeast"),
+            Map.entry("17", "Midwest"), Map.entry("18", "Midwest"), Map.entry("19", "Midwest"),
+            Map.entry("20", "Midwest"), Map.entry("26", "Midwest"), Map.entry("27", "Midwest"),
+            Map.entry("29", "Midwest"), Map.entry("31", "Midwest"), Map.entry("38", "Midwest"),
+            Map.entry("39", "Midwest"), Map.entry("46", "Midwest"), Map.entry("55", "Midwest"),
+            Map.entry("01", "South"), Map.entry("05", "South"), Map.entry("10", "South"),
+            Map.entry("11", "South"), Map.entry("12", "South"), Map.entry("13", "South"),
+            Map.entry("21", "South"), Map.entry("22", "South"), Map.entry("24", "South"),
+            Map.entry("28", "South"), Map.entry("37", "South"), Map.entry("40", "South"),
+            Map.entry("45", "South"), Map.entry("47", "South"), Map.entry("48", "South"),
+            Map.entry("51", "South"), Map.entry("54", "South"),
+            Map.entry("02", "West"), Map.entry("04", "West"), Map.entry("06", "West"),
+            Map.entry("08", "West"), Map.entry("15", "West"), Map.entry("16", "West"),
+            Map.entry("30", "West"), Map.entry("32", "West"), Map.entry("35", "West"),
+            Map.entry("41", "West"), Map.entry("49", "West"), Map.entry("53", "West"),
+            Map.entry("56", "West")
+    );
+}
@@ -0,0 +1,72 @@
+package com.rich.countyfilter;
+
+import java.util.Map;
+
+/**
+ * Parsing helpers shared by the TSV generator and the aggregate engine.
+ */
+final class CountyData {
+
+    /**
+     * Retired county FIPS codes still used by some sources, mapped to their current code.
+     * Keep in sync with legacyFipsAlias in index.html.
+     */
+    static final Map<String, String> LEGACY_FIPS_ALIAS = Map.of(
+            "46113", "46102", // Shannon County, SD -> Oglala Lakota County, SD
+            "02270", "02158", // Wade Hampton CA, AK -> Kusilvak CA, AK
+            "51515", "51019"  // Bedford city, VA -> Bedford County, VA
+    );
+
+    private CountyData() {
+    }
+
+    static String stripQuotes(String s) {
+        if (s == null) return "";
+        String t = s.trim();
+        if (t.length() >= 2 && t.startsWith("\"") && t.endsWith("\"")) {
+            return t.substring(1, t.length() - 1).trim();
+        }
+        return t;
+    }
+
+    /**
+     * Returns a 5-digit FIPS code (leading zeros restored), or null if the value has no digits
+     * or too many.
+     */
+    static String normalizeFips(String raw) {
+        String t = stripQuotes(raw).trim();
+        if (t.isEmpty() || "NA".equalsIgnoreCase(t)) return null;
+
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < t.length(); i++) {
+            char ch = t.charAt(i);
+            if (Character.isDigit(ch)) digits.append(ch);
+        }
+
+        if (digits.length() == 0) return null;
+        if (digits.length() > 5) return null;
+        while (digits.length() < 5) digits.insert(0, '0');
+        return digits.toString();
+    }
+
+    /**
+     * Maps a retired FIPS code to its current code; other codes are returned unchanged.
+     */
+    static String currentFips(String fips) {
+        return LEGACY_FIPS_ALIAS.getOrDefault(fips, fips);
+    }
+
+    /**
+     * Parses a finite number, or returns null for blanks, "NA" and anything unparseable.
+     */
+    static Double parseNumber(String raw) {
+        String t = stripQuotes(raw).trim();
+        if (t.isEmpty() || "NA".equalsIgnoreCase(t)) return null;
+        try {
+            double d = Double.parseDouble(t);
+            return Double.isFinite(d) ? d : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
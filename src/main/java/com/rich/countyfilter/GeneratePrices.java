@@ -138,7 +138,7 @@ public class GeneratePrices {
 
                 String fips;
                 if (iFips >= 0) {
-                    fips = normalizeFips(valueAt(parts, iFips));
+                    fips = CountyData.normalizeFips(valueAt(parts, iFips));
                     if (fips == null) {
                         skipped++;
                         continue;
@@ -244,48 +244,16 @@ public class GeneratePrices {
 
     private static String valueAt(String[] parts, int index) {
         if (index < 0 || index >= parts.length) return "";
-        return stripQuotes(parts[index]).trim();
+        return CountyData.stripQuotes(parts[index]).trim();
     }
 
     private static String normalizeHeader(String s) {
-        return stripQuotes(s).trim().toUpperCase(Locale.ROOT);
-    }
-
-    private static String stripQuotes(String s) {
-        if (s == null) return "";
-        String t = s.trim();
-        if (t.length() >= 2 && t.startsWith("\"") && t.endsWith("\"")) {
-            return t.substring(1, t.length() - 1).trim();
-        }
-        return t;
+        return CountyData.stripQuotes(s).trim().toUpperCase(Locale.ROOT);
     }
 
     private static Long parsePrice(String raw) {
-        String t = stripQuotes(raw).trim();
-        if (t.isEmpty() || "NA".equalsIgnoreCase(t)) return null;
-        try {
-            double d = Double.parseDouble(t);
-            if (!Double.isFinite(d)) return null;
-            return Math.round(d);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
-
-    private static String normalizeFips(String raw) {
-        String t = stripQuotes(raw).trim();
-        if (t.isEmpty() || "NA".equalsIgnoreCase(t)) return null;
-
-        StringBuilder digits = new StringBuilder();
-        for (int i = 0; i < t.length(); i++) {
-            char ch = t.charAt(i);
-            if (Character.isDigit(ch)) digits.append(ch);
-        }
-
-        if (digits.length() == 0) return null;
-        if (digits.length() > 5) return null;
-        while (digits.length() < 5) digits.insert(0, '0');
-        return digits.toString();
+        Double d = CountyData.parseNumber(raw);
+        return d == null ? null : Math.round(d);
     }
 
     private static String countyStateKey(String countyRaw, String stateRaw) {
@@ -306,7 +274,7 @@ public class GeneratePrices {
     }
 
     private static String normalizeCountyName(String countyRaw) {
-        String n = stripQuotes(countyRaw);
+        String n = CountyData.stripQuotes(countyRaw);
         int comma = n.indexOf(',');
         if (comma >= 0) n = n.substring(0, comma);
         n = n.trim();
@@ -325,7 +293,7 @@ public class GeneratePrices {
     }
 
     private static String normalizeState(String stateRaw) {
-        String s = stripQuotes(stateRaw).trim();
+        String s = CountyData.stripQuotes(stateRaw).trim();
         if (s.isEmpty()) return "";
         s = s.replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
         if (s.length() == 2) return s;
@@ -334,7 +302,7 @@ public class GeneratePrices {
     }
 
     private static ComparableDate parseComparableDate(String raw) {
-        String t = stripQuotes(raw).trim();
+        String t = CountyData.stripQuotes(raw).trim();
         if (t.isEmpty()) return null;
         try {
             return ComparableDate.forLocalDate(LocalDate.parse(t));
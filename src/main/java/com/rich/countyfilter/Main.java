@@ -7,21 +7,31 @@ import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Minimal local server:
  * - http://localhost:8080/              -> index.html
  * - http://localhost:8080/counties.json -> data/counties-10m.json
  * - http://localhost:8080/prices.tsv    -> data/prices.tsv
+ * - http://localhost:8080/api/aggregate -> state / region / nation rollups (see CountyAggregates)
  */
 public class Main {
 
     private static final int PORT = 8080;
 
     public static void main(String[] args) throws Exception {
+        CountyAggregates aggregates = CountyAggregates.load(Path.of("data"));
+
         HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", PORT), 0);
 
         server.createContext("/", ex -> {
@@ -155,6 +165,55 @@ public class Main {
             sendBytes(ex, 200, "text/tab-separated-values; charset=utf-8", bytes);
         });
 
+        // /api/aggregate?by=state&metric=price,life&price.max=500000&life.min=76
+        server.createContext("/api/aggregate", ex -> {
+            if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                sendText(ex, 405, "Method Not Allowed");
+                return;
+            }
+            String by = "state";
+            List<String> metrics = new ArrayList<>();
+            Map<String, double[]> filters = new LinkedHashMap<>();
+            Set<String> seen = new HashSet<>();
+            String body;
+            try {
+                for (String[] param : parseQuery(ex.getRequestURI().getRawQuery())) {
+                    String key = param[0];
+                    String value = param[1];
+                    if (!"metric".equals(key) && !seen.add(key)) {
+                        throw new IllegalArgumentException("Duplicate parameter: " + key);
+                    }
+                    if ("by".equals(key)) {
+                        by = value;
+                    } else if ("metric".equals(key)) {
+                        for (String m : value.split(",")) {
+                            if (!m.isBlank()) metrics.add(m.trim());
+                        }
+                    } else if (key.endsWith(".min") || key.endsWith(".max")) {
+                        String metric = key.substring(0, key.length() - 4);
+                        double[] range = filters.computeIfAbsent(metric,
+                                k -> new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY});
+                        double bound = Double.parseDouble(value);
+                        if (!Double.isFinite(bound)) {
+                            throw new IllegalArgumentException("Filter bound must be a finite number: " + key + "=" + value);
+                        }
+                        range[key.endsWith(".min") ? 0 : 1] = bound;
+                    } else {
+                        throw new IllegalArgumentException("Unknown parameter: " + key);
+                    }
+                }
+                aggregates.refreshIfChanged();
+                body = aggregates.aggregate(by, metrics, filters).toJson();
+            } catch (IllegalArgumentException e) {
+                sendText(ex, 400, e.getMessage());
+                return;
+            } catch (IOException e) {
+                sendText(ex, 500, "Failed to reload county data: " + e.getMessage());
+                return;
+            }
+            sendBytes(ex, 200, "application/json; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+        });
+
         server.createContext("/health", ex -> sendText(ex, 200, "ok"));
 
         server.setExecutor(null);
@@ -162,10 +221,26 @@ public class Main {
 
         System.out.println("County Price Map running:");
         System.out.println("  http://localhost:" + PORT + "/");
+        System.out.println("  " + aggregates.countyCount() + " counties loaded for /api/aggregate");
         System.out.println();
         System.out.println("If the map is blank, download counties-10m.json into data/ (see README.txt).");
     }
 
+    private static List<String[]> parseQuery(String rawQuery) {
+        List<String[]> params = new ArrayList<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.add(new String[]{
+                    URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8)});
+        }
+        return params;
+    }
+
     private static void sendText(HttpExchange ex, int status, String body) throws IOException {
         sendBytes(ex, status, "text/plain; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
     }